@@ -0,0 +1,468 @@
+/*
+ * Copyright 2014 Matteo Ceccarello
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.unipd.dei.experiment;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Group-by aggregation over a table of one or more experiments.
+ *
+ * Rows can be grouped by any mix of columns of the table and tags of the
+ * experiments, in the order they are given. For each group the requested
+ * aggregates are computed and returned as a new {@link Table}, with one
+ * row per group, in the order the groups are first found.
+ *
+ * <pre><code>
+ *   Aggregation aggregation = new Aggregation()
+ *     .groupByTag("parameter 1")
+ *     .count()
+ *     .mean("time")
+ *     .quantile("time", 0.95);
+ *   Table summary = aggregation.aggregate("timing", experiments);
+ *   System.out.println(summary.asOrgTable(aggregation.getColumns()));
+ * </code></pre>
+ *
+ * The rows are split in partitions that are aggregated in parallel into
+ * hash tables of primitive accumulators, which are then merged.
+ */
+public class Aggregation {
+
+  /** Minimum number of rows of a partition processed by a single task. */
+  private static final int MIN_PARTITION = 1 << 14;
+
+  private enum Function { COUNT, SUM, MEAN, MIN, MAX, QUANTILE }
+
+  private static class Aggregate {
+    final Function function;
+    final int column;
+    final double q;
+    final String name;
+
+    Aggregate(Function function, int column, double q, String name) {
+      this.function = function;
+      this.column = column;
+      this.q = q;
+      this.name = name;
+    }
+  }
+
+  private List<String> keys;
+  private List<Boolean> keyIsTag;
+  private List<String> valueColumns;
+  private List<Aggregate> aggregates;
+  private int parallelism;
+
+  public Aggregation() {
+    this.keys = new ArrayList<String>();
+    this.keyIsTag = new ArrayList<Boolean>();
+    this.valueColumns = new ArrayList<String>();
+    this.aggregates = new ArrayList<Aggregate>();
+    this.parallelism = Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Groups rows by the values of the given columns of the table.
+   * Integral values are grouped as {@link Long}, so that experiments
+   * built in memory and loaded with {@link ReportLoader} can be mixed.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Aggregation groupBy(String... columns) {
+    for(String c : columns) {
+      checkUnique(c);
+      keys.add(c);
+      keyIsTag.add(false);
+    }
+    return this;
+  }
+
+  /**
+   * Groups rows by the values of the given tags of the experiment they
+   * belong to. Rows of experiments without a tag are grouped under
+   * {@code "-"}. As for columns, integral values are grouped as
+   * {@link Long}.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Aggregation groupByTag(String... tags) {
+    for(String t : tags) {
+      checkUnique(t);
+      keys.add(t);
+      keyIsTag.add(true);
+    }
+    return this;
+  }
+
+  /**
+   * Counts the rows of each group, in column {@code "count"}.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Aggregation count() {
+    checkUnique("count");
+    aggregates.add(new Aggregate(Function.COUNT, -1, 0, "count"));
+    return this;
+  }
+
+  /**
+   * Sums the given numeric column, in column {@code "sum(column)"}.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Aggregation sum(String column) {
+    return add(Function.SUM, column, 0, "sum(" + column + ")");
+  }
+
+  /**
+   * Averages the given numeric column, in column {@code "mean(column)"}.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Aggregation mean(String column) {
+    return add(Function.MEAN, column, 0, "mean(" + column + ")");
+  }
+
+  /**
+   * Minimum of the given numeric column, in column {@code "min(column)"}.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Aggregation min(String column) {
+    return add(Function.MIN, column, 0, "min(" + column + ")");
+  }
+
+  /**
+   * Maximum of the given numeric column, in column {@code "max(column)"}.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Aggregation max(String column) {
+    return add(Function.MAX, column, 0, "max(" + column + ")");
+  }
+
+  /**
+   * The {@code q}-quantile of the given numeric column, linearly
+   * interpolated, in column {@code "q0.95(column)"} for {@code q = 0.95}.
+   * Quantiles are exact, hence all the values of the column are kept in
+   * memory.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Aggregation quantile(String column, double q) {
+    if(q < 0 || q > 1) {
+      throw new IllegalArgumentException("Quantiles should be in [0, 1]");
+    }
+    return add(Function.QUANTILE, column, q, "q" + q + "(" + column + ")");
+  }
+
+  /**
+   * Sets the number of threads used by the aggregation. Defaults to the
+   * number of available processors.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Aggregation parallelism(int parallelism) {
+    if(parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism should be positive");
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  private Aggregation add(Function function, String column, double q, String name) {
+    checkUnique(name);
+    int idx = valueColumns.indexOf(column);
+    if(idx < 0) {
+      idx = valueColumns.size();
+      valueColumns.add(column);
+    }
+    aggregates.add(new Aggregate(function, idx, q, name));
+    return this;
+  }
+
+  /**
+   * Every grouping key and aggregate is a column of the result, hence
+   * their names must be distinct.
+   */
+  private void checkUnique(String name) {
+    if(Arrays.asList(getColumns()).contains(name)) {
+      throw new IllegalArgumentException(
+        "Column " + name + " is already part of the aggregation");
+    }
+  }
+
+  /**
+   * The columns of the tables returned by this aggregation, in display
+   * order: first the grouping keys, then the aggregates.
+   */
+  public String[] getColumns() {
+    String[] columns = new String[keys.size() + aggregates.size()];
+    int i = 0;
+    for(String k : keys) {
+      columns[i++] = k;
+    }
+    for(Aggregate a : aggregates) {
+      columns[i++] = a.name;
+    }
+    return columns;
+  }
+
+  /**
+   * Aggregates the given table of the given experiments.
+   * @param tableName the table to aggregate
+   * @param experiments the experiments, as a varargs array
+   * @return a new table with a row for each group
+   */
+  public Table aggregate(String tableName, Experiment... experiments) {
+    return aggregate(tableName, Arrays.asList(experiments));
+  }
+
+  /**
+   * Aggregates the given table of the given experiments. Experiments
+   * without the table are ignored.
+   * @param tableName the table to aggregate
+   * @param experiments the experiments
+   * @return a new table with a row for each group
+   */
+  public Table aggregate(String tableName, List<Experiment> experiments) {
+    if(aggregates.isEmpty()) {
+      throw new IllegalStateException("No aggregate was requested");
+    }
+    boolean[] keepSamples = new boolean[valueColumns.size()];
+    for(Aggregate a : aggregates) {
+      if(a.function == Function.QUANTILE) {
+        keepSamples[a.column] = true;
+      }
+    }
+
+    long totalRows = 0;
+    for(Experiment exp : experiments) {
+      Table table = exp.getTables().get(tableName);
+      if(table != null) {
+        totalRows += table.getRows().size();
+      }
+    }
+    int partitionSize = (int) Math.max(MIN_PARTITION, totalRows / (4L * parallelism) + 1);
+
+    List<Callable<Map<GroupKey, Accumulator>>> tasks =
+      new ArrayList<Callable<Map<GroupKey, Accumulator>>>();
+    for(Experiment exp : experiments) {
+      Table table = exp.getTables().get(tableName);
+      if(table == null) {
+        continue;
+      }
+      List<Map<String, Object>> rows = table.getRows();
+      for(int from = 0; from < rows.size(); from += partitionSize) {
+        int to = Math.min(rows.size(), from + partitionSize);
+        tasks.add(new Partition(exp, rows.subList(from, to), keepSamples));
+      }
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    try {
+      // Merging partials in partition order keeps groups in order of appearance
+      Map<GroupKey, Accumulator> groups = new LinkedHashMap<GroupKey, Accumulator>();
+      for(Map<GroupKey, Accumulator> partial : Statistics.invokeAll(executor, tasks)) {
+        for(Map.Entry<GroupKey, Accumulator> e : partial.entrySet()) {
+          Accumulator acc = groups.get(e.getKey());
+          if(acc == null) {
+            groups.put(e.getKey(), e.getValue());
+          } else {
+            acc.merge(e.getValue());
+          }
+        }
+      }
+      return toTable(groups, executor);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private Table toTable(Map<GroupKey, Accumulator> groups, ExecutorService executor) {
+    // Sort the samples of all the groups at once, so that many small
+    // groups are sorted in parallel as well
+    List<double[]> toSort = new ArrayList<double[]>();
+    for(Accumulator acc : groups.values()) {
+      acc.sorted = new double[acc.samples.length][];
+      for(int c = 0; c < acc.samples.length; c++) {
+        if(acc.samples[c] != null) {
+          acc.sorted[c] = acc.samples[c].toArray();
+          acc.samples[c] = null;
+          toSort.add(acc.sorted[c]);
+        }
+      }
+    }
+    Statistics.sortAll(toSort, executor, parallelism);
+
+    Table result = new Table(getColumns());
+    for(Map.Entry<GroupKey, Accumulator> e : groups.entrySet()) {
+      Accumulator acc = e.getValue();
+      Map<String, Object> row = new HashMap<String, Object>();
+      Object[] key = e.getKey().values;
+      for(int i = 0; i < keys.size(); i++) {
+        row.put(keys.get(i), (key[i] == null) ? "-" : key[i]);
+      }
+      for(Aggregate a : aggregates) {
+        switch(a.function) {
+          case COUNT:
+            row.put(a.name, acc.count);
+            break;
+          case SUM:
+            row.put(a.name, acc.sum[a.column]);
+            break;
+          case MEAN:
+            row.put(a.name, acc.sum[a.column] / acc.count);
+            break;
+          case MIN:
+            row.put(a.name, acc.min[a.column]);
+            break;
+          case MAX:
+            row.put(a.name, acc.max[a.column]);
+            break;
+          case QUANTILE:
+            row.put(a.name, Statistics.quantile(acc.sorted[a.column], a.q));
+            break;
+        }
+      }
+      result.addRowMap(row);
+    }
+    return result;
+  }
+
+  /**
+   * Aggregates a contiguous range of rows of a single experiment.
+   */
+  private class Partition implements Callable<Map<GroupKey, Accumulator>> {
+
+    private final Experiment experiment;
+    private final List<Map<String, Object>> rows;
+    private final boolean[] keepSamples;
+
+    Partition(Experiment experiment, List<Map<String, Object>> rows, boolean[] keepSamples) {
+      this.experiment = experiment;
+      this.rows = rows;
+      this.keepSamples = keepSamples;
+    }
+
+    @Override
+    public Map<GroupKey, Accumulator> call() {
+      Map<GroupKey, Accumulator> groups = new LinkedHashMap<GroupKey, Accumulator>();
+      int numKeys = keys.size();
+      int numColumns = valueColumns.size();
+      String[] columns = valueColumns.toArray(new String[numColumns]);
+
+      // Tag values are the same for all the rows of the experiment
+      Object[] values = new Object[numKeys];
+      for(int i = 0; i < numKeys; i++) {
+        if(keyIsTag.get(i)) {
+          values[i] = ReportLoader.normalize(experiment.getTags().get(keys.get(i)));
+        }
+      }
+      GroupKey probe = new GroupKey(values);
+
+      for(Map<String, Object> row : rows) {
+        for(int i = 0; i < numKeys; i++) {
+          if(!keyIsTag.get(i)) {
+            values[i] = ReportLoader.normalize(row.get(keys.get(i)));
+          }
+        }
+        probe.rehash();
+        Accumulator acc = groups.get(probe);
+        if(acc == null) {
+          acc = new Accumulator(numColumns, keepSamples);
+          groups.put(new GroupKey(values.clone()), acc);
+        }
+        acc.count++;
+        for(int c = 0; c < numColumns; c++) {
+          Object value = row.get(columns[c]);
+          if(!(value instanceof Number)) {
+            throw new IllegalArgumentException(
+              "Column " + columns[c] + " has non numeric value " +
+              value + " in " + experiment);
+          }
+          acc.add(c, ((Number) value).doubleValue());
+        }
+      }
+      return groups;
+    }
+  }
+
+  private static final class GroupKey {
+
+    final Object[] values;
+    private int hash;
+
+    GroupKey(Object[] values) {
+      this.values = values;
+      rehash();
+    }
+
+    void rehash() {
+      hash = Arrays.hashCode(values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof GroupKey && Arrays.equals(values, ((GroupKey) o).values);
+    }
+  }
+
+  private static final class Accumulator {
+
+    long count;
+    final double[] sum;
+    final double[] min;
+    final double[] max;
+    final DoubleList[] samples;
+    double[][] sorted;
+
+    Accumulator(int numColumns, boolean[] keepSamples) {
+      this.count = 0;
+      this.sum = new double[numColumns];
+      this.min = new double[numColumns];
+      this.max = new double[numColumns];
+      this.samples = new DoubleList[numColumns];
+      Arrays.fill(min, Double.POSITIVE_INFINITY);
+      Arrays.fill(max, Double.NEGATIVE_INFINITY);
+      for(int c = 0; c < numColumns; c++) {
+        if(keepSamples[c]) {
+          samples[c] = new DoubleList();
+        }
+      }
+    }
+
+    void add(int c, double value) {
+      sum[c] += value;
+      if(value < min[c]) min[c] = value;
+      if(value > max[c]) max[c] = value;
+      if(samples[c] != null) {
+        samples[c].add(value);
+      }
+    }
+
+    void merge(Accumulator other) {
+      count += other.count;
+      for(int c = 0; c < sum.length; c++) {
+        sum[c] += other.sum[c];
+        min[c] = Math.min(min[c], other.min[c]);
+        max[c] = Math.max(max[c], other.max[c]);
+        if(samples[c] != null) {
+          samples[c].addAll(other.samples[c]);
+        }
+      }
+    }
+  }
+
+}
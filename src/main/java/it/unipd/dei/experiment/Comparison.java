@@ -0,0 +1,427 @@
+/*
+ * Copyright 2014 Matteo Ceccarello
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.unipd.dei.experiment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Detects performance regressions between two sets of experiments, for
+ * instance the reports of a baseline and of a candidate version.
+ *
+ * Experiments are grouped by the values of the tags given to
+ * {@link #matchTags(String...)}, and within each group the values of a
+ * numeric column of a table are pooled together. For every group that
+ * appears in both sets the medians are compared with a bootstrap confidence
+ * interval on their relative change, and the two samples are compared with
+ * a Mann-Whitney U test.
+ *
+ * <pre><code>
+ *   Comparison comparison = new Comparison("timing", "time")
+ *     .matchTags("parameter 1")
+ *     .threshold(0.05);
+ *   Table differences = comparison.compare(baseline, candidate);
+ *   System.out.println(differences.asOrgTable(comparison.getColumns()));
+ * </code></pre>
+ *
+ * A group is reported as a regression when the p-value of the test is
+ * below {@link #alpha(double)} and the whole confidence interval of the
+ * relative change lies beyond {@link #threshold(double)} in the bad
+ * direction. By default lower values are better, as with running times.
+ */
+public class Comparison {
+
+  public static final String BASELINE_COUNT = "baseline n";
+  public static final String CANDIDATE_COUNT = "candidate n";
+  public static final String BASELINE_MEDIAN = "baseline median";
+  public static final String CANDIDATE_MEDIAN = "candidate median";
+  public static final String CHANGE = "change";
+  public static final String CI_LOW = "ci low";
+  public static final String CI_HIGH = "ci high";
+  public static final String P_VALUE = "p-value";
+  public static final String REGRESSION = "regression";
+
+  private static final String[] STAT_COLUMNS = {
+    BASELINE_COUNT, CANDIDATE_COUNT, BASELINE_MEDIAN, CANDIDATE_MEDIAN,
+    CHANGE, CI_LOW, CI_HIGH, P_VALUE, REGRESSION
+  };
+
+  private String tableName;
+  private String column;
+  private List<String> matchTags;
+  private double threshold;
+  private double alpha;
+  private double confidence;
+  private int resamples;
+  private boolean lowerIsBetter;
+  private int parallelism;
+  private long seed;
+
+  /**
+   * Create a comparison of the given column of the given table.
+   * @param tableName the name of the table holding the samples
+   * @param column the numeric column to compare
+   */
+  public Comparison(String tableName, String column) {
+    this.tableName = tableName;
+    this.column = column;
+    this.matchTags = new ArrayList<String>();
+    this.threshold = 0.05;
+    this.alpha = 0.05;
+    this.confidence = 0.95;
+    this.resamples = 10000;
+    this.lowerIsBetter = true;
+    this.parallelism = Runtime.getRuntime().availableProcessors();
+    this.seed = 0;
+  }
+
+  /**
+   * Sets the tags used to match experiments of the two sets. Experiments
+   * with the same values for all these tags are pooled together.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Comparison matchTags(String... tags) {
+    this.matchTags = Arrays.asList(tags);
+    return this;
+  }
+
+  /**
+   * Sets the minimum relative change of the median to be considered a
+   * regression. Defaults to {@code 0.05}, that is 5%.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Comparison threshold(double threshold) {
+    this.threshold = threshold;
+    return this;
+  }
+
+  /**
+   * Sets the significance level of the Mann-Whitney test. Defaults to
+   * {@code 0.05}.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Comparison alpha(double alpha) {
+    this.alpha = alpha;
+    return this;
+  }
+
+  /**
+   * Sets the confidence level of the bootstrap interval. Defaults to
+   * {@code 0.95}.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Comparison confidence(double confidence) {
+    if(confidence <= 0 || confidence >= 1) {
+      throw new IllegalArgumentException("Confidence should be in (0, 1)");
+    }
+    this.confidence = confidence;
+    return this;
+  }
+
+  /**
+   * Sets the number of bootstrap resamples. Defaults to {@code 10000}.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Comparison resamples(int resamples) {
+    if(resamples < 1) {
+      throw new IllegalArgumentException("At least one resample is needed");
+    }
+    this.resamples = resamples;
+    return this;
+  }
+
+  /**
+   * Flags increases of the column as improvements and decreases as
+   * regressions, as for throughputs.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Comparison higherIsBetter() {
+    this.lowerIsBetter = false;
+    return this;
+  }
+
+  /**
+   * Sets the number of threads used to compute the statistics. Defaults
+   * to the number of available processors.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Comparison parallelism(int parallelism) {
+    if(parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism should be positive");
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Sets the seed of the bootstrap, so that results are reproducible.
+   * @return a reference to {@code this} for method chaining
+   */
+  public Comparison seed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  /**
+   * The columns of the tables returned by {@link #compare(List, List)},
+   * in display order: first the matched tags, then the statistics.
+   */
+  public String[] getColumns() {
+    String[] columns = new String[matchTags.size() + STAT_COLUMNS.length];
+    int i = 0;
+    for(String t : matchTags) {
+      columns[i++] = t;
+    }
+    for(String c : STAT_COLUMNS) {
+      columns[i++] = c;
+    }
+    return columns;
+  }
+
+  /**
+   * Compares the two sets of experiments, returning a table with a row
+   * for each group of matching experiments found in both sets. Relative
+   * changes are expressed as fractions of the baseline median.
+   *
+   * @param baseline the reference experiments
+   * @param candidate the experiments to be checked for regressions
+   * @return the table of differences
+   */
+  public Table compare(List<Experiment> baseline, List<Experiment> candidate) {
+    Map<List<Object>, DoubleList> baseSamples = collect(baseline);
+    Map<List<Object>, DoubleList> candSamples = collect(candidate);
+
+    Table differences = new Table(getColumns());
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    try {
+      for(Map.Entry<List<Object>, DoubleList> e : baseSamples.entrySet()) {
+        DoubleList cand = candSamples.get(e.getKey());
+        if(cand == null) {
+          continue;
+        }
+        differences.addRowMap(compareGroup(e.getKey(), e.getValue(), cand, executor));
+      }
+    } finally {
+      executor.shutdown();
+    }
+    return differences;
+  }
+
+  private Map<String, Object> compareGroup(List<Object> key,
+                                           DoubleList baseList,
+                                           DoubleList candList,
+                                           ExecutorService executor) {
+    double[] base = baseList.toArray();
+    double[] cand = candList.toArray();
+    Statistics.sort(base, executor, parallelism);
+    Statistics.sort(cand, executor, parallelism);
+
+    double baseMedian = Statistics.median(base);
+    double candMedian = Statistics.median(cand);
+    double change = Statistics.relativeChange(baseMedian, candMedian);
+    double pValue = Statistics.mannWhitneyPValue(base, cand);
+    double[] replicates = Statistics.bootstrapMedianChange(
+      base, cand, resamples, seed, executor, parallelism);
+    double ciLow = Statistics.quantile(replicates, (1 - confidence) / 2);
+    double ciHigh = Statistics.quantile(replicates, (1 + confidence) / 2);
+
+    boolean regression = pValue < alpha &&
+      ((lowerIsBetter) ? ciLow > threshold : ciHigh < -threshold);
+
+    Map<String, Object> row = new HashMap<String, Object>();
+    for(int i = 0; i < matchTags.size(); i++) {
+      Object value = key.get(i);
+      row.put(matchTags.get(i), (value == null) ? "-" : value);
+    }
+    row.put(BASELINE_COUNT, base.length);
+    row.put(CANDIDATE_COUNT, cand.length);
+    row.put(BASELINE_MEDIAN, baseMedian);
+    row.put(CANDIDATE_MEDIAN, candMedian);
+    row.put(CHANGE, round(change));
+    row.put(CI_LOW, round(ciLow));
+    row.put(CI_HIGH, round(ciHigh));
+    row.put(P_VALUE, round(pValue));
+    row.put(REGRESSION, regression);
+    return row;
+  }
+
+  private Map<List<Object>, DoubleList> collect(List<Experiment> experiments) {
+    Map<List<Object>, DoubleList> samples = new LinkedHashMap<List<Object>, DoubleList>();
+    for(Experiment exp : experiments) {
+      Table table = exp.getTables().get(tableName);
+      if(table == null) {
+        continue;
+      }
+      List<Object> key = new ArrayList<Object>(matchTags.size());
+      for(String t : matchTags) {
+        key.add(ReportLoader.normalize(exp.getTags().get(t)));
+      }
+      DoubleList values = samples.get(key);
+      if(values == null) {
+        values = new DoubleList();
+        samples.put(key, values);
+      }
+      for(Map<String, Object> row : table.getRows()) {
+        Object value = row.get(column);
+        if(!(value instanceof Number)) {
+          throw new IllegalArgumentException(
+            "Column " + column + " of table " + tableName +
+            " has non numeric value " + value + " in " + exp);
+        }
+        double d = ((Number) value).doubleValue();
+        if(Double.isNaN(d) || Double.isInfinite(d)) {
+          throw new IllegalArgumentException(
+            "Column " + column + " of table " + tableName +
+            " has non finite value " + value + " in " + exp);
+        }
+        values.add(d);
+      }
+    }
+    return samples;
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 10000) / 10000.0;
+  }
+
+  /**
+   * Tells whether any row of a table returned by
+   * {@link #compare(List, List)} is flagged as a regression.
+   */
+  public static boolean hasRegression(Table differences) {
+    for(Map<String, Object> row : differences.getRows()) {
+      if(Boolean.TRUE.equals(row.get(REGRESSION))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void usage(String message) {
+    System.err.println(message);
+    System.err.println(
+      "Usage: Comparison -table NAME -column NAME [options] BASELINE CANDIDATE\n" +
+      "\n" +
+      "BASELINE and CANDIDATE are report files or directories.\n" +
+      "\n" +
+      "Options:\n" +
+      "  -tags a,b,...       tags used to match the experiments\n" +
+      "  -threshold X        minimum relative change to flag (default 0.05)\n" +
+      "  -alpha X            significance level (default 0.05)\n" +
+      "  -confidence X       confidence of the interval (default 0.95)\n" +
+      "  -resamples N        bootstrap resamples (default 10000)\n" +
+      "  -parallelism N      number of threads (default: processors)\n" +
+      "  -higher-is-better   flag decreases of the column instead\n" +
+      "\n" +
+      "Exits with status 1 if a regression is found, 2 on errors.");
+    System.exit(2);
+  }
+
+  /**
+   * Compares two sets of reports from the command line, printing the
+   * table of differences and exiting with status 1 if any regression
+   * is found. Invalid options, unreadable or malformed reports, non
+   * numeric samples and the lack of matching experiments make it exit
+   * with status 2, so that broken inputs are not taken for regressions.
+   */
+  public static void main(String[] args) {
+    String table = null, column = null;
+    String[] tags = new String[0];
+    double threshold = 0.05, alpha = 0.05, confidence = 0.95;
+    int resamples = 10000;
+    int parallelism = Runtime.getRuntime().availableProcessors();
+    boolean higherIsBetter = false;
+    List<String> paths = new ArrayList<String>();
+    try {
+      for(int i = 0; i < args.length; i++) {
+        String arg = args[i];
+        if(arg.equals("-higher-is-better")) {
+          higherIsBetter = true;
+        } else if(arg.startsWith("-")) {
+          if(i + 1 >= args.length) {
+            usage("Missing value for " + arg);
+          }
+          String value = args[++i];
+          if(arg.equals("-table")) {
+            table = value;
+          } else if(arg.equals("-column")) {
+            column = value;
+          } else if(arg.equals("-tags")) {
+            tags = value.split(",");
+          } else if(arg.equals("-threshold")) {
+            threshold = Double.parseDouble(value);
+          } else if(arg.equals("-alpha")) {
+            alpha = Double.parseDouble(value);
+          } else if(arg.equals("-confidence")) {
+            confidence = Double.parseDouble(value);
+          } else if(arg.equals("-resamples")) {
+            resamples = Integer.parseInt(value);
+          } else if(arg.equals("-parallelism")) {
+            parallelism = Integer.parseInt(value);
+          } else {
+            usage("Unknown option " + arg);
+          }
+        } else {
+          paths.add(arg);
+        }
+      }
+    } catch (NumberFormatException e) {
+      usage("Invalid number: " + e.getMessage());
+    }
+    if(table == null || column == null || paths.size() != 2) {
+      usage("A table, a column, a baseline and a candidate are required");
+    }
+
+    Comparison comparison = null;
+    try {
+      comparison = new Comparison(table, column)
+        .matchTags(tags)
+        .threshold(threshold)
+        .alpha(alpha)
+        .confidence(confidence)
+        .resamples(resamples)
+        .parallelism(parallelism);
+    } catch (IllegalArgumentException e) {
+      usage(e.getMessage());
+    }
+    if(higherIsBetter) {
+      comparison.higherIsBetter();
+    }
+
+    Table differences = null;
+    try {
+      List<Experiment> baseline = ReportLoader.load(new File(paths.get(0)));
+      List<Experiment> candidate = ReportLoader.load(new File(paths.get(1)));
+      differences = comparison.compare(baseline, candidate);
+    } catch (IOException e) {
+      System.err.println("Cannot read reports: " + e.getMessage());
+      System.exit(2);
+    } catch (RuntimeException e) {
+      System.err.println("Cannot compare reports: " + e.getMessage());
+      System.exit(2);
+    }
+    if(differences.getRows().isEmpty()) {
+      System.err.println("No matching experiments with table " + table);
+      System.exit(2);
+    }
+    System.out.println(differences.asOrgTable(comparison.getColumns()));
+    System.exit(hasRegression(differences) ? 1 : 0);
+  }
+
+}
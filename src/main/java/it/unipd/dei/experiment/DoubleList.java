@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014 Matteo Ceccarello
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.unipd.dei.experiment;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of primitive doubles, to avoid boxing large samples.
+ */
+class DoubleList {
+
+  private double[] values;
+  private int size;
+
+  DoubleList() {
+    this.values = new double[16];
+    this.size = 0;
+  }
+
+  void add(double value) {
+    if(size == values.length) {
+      values = Arrays.copyOf(values, values.length * 2);
+    }
+    values[size++] = value;
+  }
+
+  void addAll(DoubleList other) {
+    if(size + other.size > values.length) {
+      values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+    }
+    System.arraycopy(other.values, 0, values, size, other.size);
+    size += other.size;
+  }
+
+  int size() {
+    return size;
+  }
+
+  double[] toArray() {
+    return Arrays.copyOf(values, size);
+  }
+
+}
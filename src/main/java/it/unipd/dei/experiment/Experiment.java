@@ -45,6 +45,7 @@ import java.util.zip.GZIPOutputStream;
  *   <li>Append rows to tables: {@link #append(String, Object...)}
  *                              and {@link #append(String, java.util.Map)}</li>
  *   <li>Save as Json files: {@link #saveAsJsonFile()}</li>
+ *   <li>Summarize tables: {@link Aggregation}</li>
  * </ul>
  */
 public class Experiment {
@@ -66,6 +67,16 @@ public class Experiment {
     addSystemTags();
   }
 
+  /**
+   * Create an experiment with the given date, without reading tags from
+   * system properties. Used to rebuild experiments from saved reports.
+   */
+  protected Experiment(DateTime date) {
+    this.date = date;
+    tags = new HashMap<String, Object>();
+    tables = new HashMap<String, Table>();
+  }
+
   /**
    * Adds all the properties starting with {@code experiment.tag}. The string
    * {@code experiment.tag} is stripped from the comment and the value is
@@ -173,6 +184,18 @@ public class Experiment {
     return this;
   }
 
+  /**
+   * Adds a whole table to this experiment, for instance the result of an
+   * {@link Aggregation}. An existing table with the same name is replaced.
+   * @param tableName the name of the table
+   * @param table the table to add
+   * @return a reference to {@code this} for method chaining
+   */
+  public Experiment addTable(String tableName, Table table) {
+    tables.put(tableName, table);
+    return this;
+  }
+
   /**
    * Simple string representation of the experiment.
    * @return a simple string representation.
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014 Matteo Ceccarello
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.unipd.dei.experiment;
+
+import com.google.gson.*;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads back the reports written by {@link Experiment#saveAsJsonFile()}.
+ *
+ * A report file can contain several experiments, one after the other, as
+ * it happens when reports are saved in append mode. Files ending in
+ * {@code .json.gz} are decompressed on the fly. Numbers without a
+ * fractional part are read as {@link Long}, all the others as
+ * {@link Double}.
+ */
+public class ReportLoader {
+
+  private static DateTimeFormatter dateParser =
+    ISODateTimeFormat.dateTimeParser().withOffsetParsed();
+
+  /**
+   * Loads all the experiments contained in the given files. Directories
+   * are visited recursively, looking for files ending in {@code .json}
+   * or {@code .json.gz}.
+   *
+   * @param paths files or directories containing reports
+   * @return the experiments, in the order they were found
+   * @throws IOException if a file cannot be read
+   */
+  public static List<Experiment> load(File... paths) throws IOException {
+    List<Experiment> experiments = new ArrayList<Experiment>();
+    for(File path : paths) {
+      loadInto(path, experiments);
+    }
+    return experiments;
+  }
+
+  /**
+   * Parses all the experiments contained in the given JSON string.
+   *
+   * @param json one or more JSON encoded experiments
+   * @return the experiments, in the order they appear in the string
+   */
+  public static List<Experiment> parse(String json) {
+    return parse(new StringReader(json));
+  }
+
+  /**
+   * Parses all the experiments that can be read from the given reader.
+   * The reader is not closed.
+   *
+   * @param reader a source of JSON encoded experiments
+   * @return the experiments, in the order they are read
+   */
+  public static List<Experiment> parse(Reader reader) {
+    List<Experiment> experiments = new ArrayList<Experiment>();
+    JsonStreamParser parser = new JsonStreamParser(reader);
+    while(parser.hasNext()) {
+      JsonElement elem = parser.next();
+      if(!elem.isJsonObject()) {
+        throw new IllegalArgumentException(
+          "Expected a JSON object, found " + elem);
+      }
+      experiments.add(toExperiment(elem.getAsJsonObject()));
+    }
+    return experiments;
+  }
+
+  private static void loadInto(File path, List<Experiment> experiments) throws IOException {
+    if(path.isDirectory()) {
+      File[] children = path.listFiles();
+      if(children == null) {
+        throw new IOException("Cannot list directory " + path);
+      }
+      Arrays.sort(children);
+      for(File child : children) {
+        if(child.isDirectory() || isReport(child)) {
+          loadInto(child, experiments);
+        }
+      }
+    } else {
+      InputStream is = new FileInputStream(path);
+      if(path.getName().endsWith(".gz")) {
+        is = new GZIPInputStream(is);
+      }
+      Reader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+      try {
+        experiments.addAll(parse(reader));
+      } catch (JsonParseException e) {
+        throw new IOException("Malformed report " + path + ": " + e.getMessage());
+      } finally {
+        reader.close();
+      }
+    }
+  }
+
+  private static boolean isReport(File file) {
+    String name = file.getName();
+    return name.endsWith(".json") || name.endsWith(".json.gz");
+  }
+
+  private static Experiment toExperiment(JsonObject obj) {
+    JsonElement date = obj.get("date");
+    if(date == null || !date.isJsonPrimitive()) {
+      throw new IllegalArgumentException("Missing date in report " + obj);
+    }
+    Experiment experiment = new Experiment(dateParser.parseDateTime(date.getAsString()));
+
+    JsonElement tags = obj.get("tags");
+    if(tags != null && tags.isJsonObject()) {
+      for(Map.Entry<String, JsonElement> t : tags.getAsJsonObject().entrySet()) {
+        experiment.tag(t.getKey(), toValue(t.getValue()));
+      }
+    }
+
+    JsonElement tables = obj.get("tables");
+    if(tables != null && tables.isJsonObject()) {
+      for(Map.Entry<String, JsonElement> t : tables.getAsJsonObject().entrySet()) {
+        for(JsonElement row : t.getValue().getAsJsonArray()) {
+          Map<String, Object> rowMap = new HashMap<String, Object>();
+          for(Map.Entry<String, JsonElement> e : row.getAsJsonObject().entrySet()) {
+            rowMap.put(e.getKey(), toValue(e.getValue()));
+          }
+          experiment.append(t.getKey(), rowMap);
+        }
+      }
+    }
+
+    return experiment;
+  }
+
+  /**
+   * Converts integral numbers to {@link Long}, the type they have when
+   * read back from a report, so that values of experiments built in
+   * memory and of loaded ones compare equal.
+   */
+  static Object normalize(Object value) {
+    if(value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      return ((Number) value).longValue();
+    }
+    return value;
+  }
+
+  private static Object toValue(JsonElement elem) {
+    if(elem == null || elem.isJsonNull()) {
+      return null;
+    }
+    if(elem.isJsonPrimitive()) {
+      JsonPrimitive p = elem.getAsJsonPrimitive();
+      if(p.isBoolean()) {
+        return p.getAsBoolean();
+      }
+      if(p.isNumber()) {
+        String s = p.getAsString();
+        if(s.indexOf('.') < 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
+          try {
+            return Long.parseLong(s);
+          } catch (NumberFormatException e) {
+            // Too large for a long, fall back to double
+          }
+        }
+        return p.getAsDouble();
+      }
+      return p.getAsString();
+    }
+    if(elem.isJsonArray()) {
+      List<Object> list = new ArrayList<Object>();
+      for(JsonElement e : elem.getAsJsonArray()) {
+        list.add(toValue(e));
+      }
+      return list;
+    }
+    Map<String, Object> map = new HashMap<String, Object>();
+    for(Map.Entry<String, JsonElement> e : elem.getAsJsonObject().entrySet()) {
+      map.put(e.getKey(), toValue(e.getValue()));
+    }
+    return map;
+  }
+
+}
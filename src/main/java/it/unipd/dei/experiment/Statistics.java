@@ -0,0 +1,362 @@
+/*
+ * Copyright 2014 Matteo Ceccarello
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.unipd.dei.experiment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+/**
+ * Robust statistics on samples of doubles. Unless otherwise stated, the
+ * arrays given to these methods must be sorted in ascending order.
+ */
+class Statistics {
+
+  /** Below this size arrays are sorted sequentially. */
+  private static final int MIN_PARALLEL_SORT = 1 << 16;
+
+  /** Number of bootstrap resamples drawn from the same random generator. */
+  private static final int BOOTSTRAP_BLOCK = 256;
+
+  private Statistics() { }
+
+  /**
+   * Sorts the given array in place, splitting the work among
+   * {@code parallelism} tasks submitted to {@code executor}.
+   */
+  static void sort(final double[] data, ExecutorService executor, int parallelism) {
+    int n = data.length;
+    if(parallelism <= 1 || n < MIN_PARALLEL_SORT) {
+      Arrays.sort(data);
+      return;
+    }
+    int chunks = Math.min(parallelism, n / (MIN_PARALLEL_SORT / 2));
+    final int[] bounds = new int[chunks + 1];
+    for(int i = 0; i <= chunks; i++) {
+      bounds[i] = (int) ((long) n * i / chunks);
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for(int i = 0; i < chunks; i++) {
+      final int from = bounds[i], to = bounds[i + 1];
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          Arrays.sort(data, from, to);
+          return null;
+        }
+      });
+    }
+    invokeAll(executor, tasks);
+
+    // Merge pairs of adjacent runs, doubling their width at each round
+    double[] src = data;
+    double[] dst = new double[n];
+    for(int width = 1; width < chunks; width *= 2) {
+      tasks.clear();
+      for(int i = 0; i < chunks; i += 2 * width) {
+        final int lo = bounds[i];
+        final int mid = bounds[Math.min(i + width, chunks)];
+        final int hi = bounds[Math.min(i + 2 * width, chunks)];
+        final double[] from = src, to = dst;
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() {
+            merge(from, lo, mid, hi, to);
+            return null;
+          }
+        });
+      }
+      invokeAll(executor, tasks);
+      double[] tmp = src;
+      src = dst;
+      dst = tmp;
+    }
+    if(src != data) {
+      System.arraycopy(src, 0, data, 0, n);
+    }
+  }
+
+  /**
+   * Sorts all the given arrays in place. Arrays large enough are sorted
+   * one at a time with {@link #sort}, the others are spread among
+   * {@code parallelism} tasks, balancing the number of values to sort.
+   */
+  static void sortAll(List<double[]> arrays, ExecutorService executor, int parallelism) {
+    final List<List<double[]>> batches = new ArrayList<List<double[]>>();
+    long[] loads = new long[parallelism];
+    for(int i = 0; i < parallelism; i++) {
+      batches.add(new ArrayList<double[]>());
+    }
+    for(double[] a : arrays) {
+      if(parallelism > 1 && a.length >= MIN_PARALLEL_SORT) {
+        sort(a, executor, parallelism);
+      } else {
+        int lightest = 0;
+        for(int i = 1; i < parallelism; i++) {
+          if(loads[i] < loads[lightest]) lightest = i;
+        }
+        batches.get(lightest).add(a);
+        loads[lightest] += a.length;
+      }
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for(final List<double[]> batch : batches) {
+      if(batch.isEmpty()) {
+        continue;
+      }
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          for(double[] a : batch) {
+            Arrays.sort(a);
+          }
+          return null;
+        }
+      });
+    }
+    invokeAll(executor, tasks);
+  }
+
+  /**
+   * Merges two sorted runs, ordering values as {@link Arrays#sort(double[])}
+   * does, with NaN after every other value.
+   */
+  private static void merge(double[] src, int lo, int mid, int hi, double[] dst) {
+    int i = lo, j = mid, k = lo;
+    while(i < mid && j < hi) {
+      dst[k++] = (Double.compare(src[j], src[i]) < 0) ? src[j++] : src[i++];
+    }
+    while(i < mid) dst[k++] = src[i++];
+    while(j < hi) dst[k++] = src[j++];
+  }
+
+  /**
+   * Runs all the given tasks and waits for them to complete. Failures of
+   * the tasks are rethrown as unchecked exceptions.
+   */
+  static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) {
+    List<T> results = new ArrayList<T>(tasks.size());
+    try {
+      for(Future<T> f : executor.invokeAll(tasks)) {
+        results.add(f.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      if(e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    return results;
+  }
+
+  static double median(double[] sorted) {
+    return quantile(sorted, 0.5);
+  }
+
+  /**
+   * The {@code q}-quantile of the sample, linearly interpolating between
+   * the two closest ranks.
+   */
+  static double quantile(double[] sorted, double q) {
+    int n = sorted.length;
+    if(n == 0) {
+      return Double.NaN;
+    }
+    double h = (n - 1) * q;
+    int lo = (int) Math.floor(h);
+    if(lo >= n - 1) {
+      return sorted[n - 1];
+    }
+    return sorted[lo] + (h - lo) * (sorted[lo + 1] - sorted[lo]);
+  }
+
+  /**
+   * Two sided p-value of the Mann-Whitney U test, using the normal
+   * approximation with tie and continuity corrections. The ranks are
+   * computed by merging the two sorted samples, so no further sorting
+   * is needed.
+   */
+  static double mannWhitneyPValue(double[] sortedA, double[] sortedB) {
+    int n1 = sortedA.length, n2 = sortedB.length;
+    if(n1 == 0 || n2 == 0) {
+      return Double.NaN;
+    }
+    double rankSumA = 0;
+    double ties = 0;
+    long rank = 0;
+    int i = 0, j = 0;
+    while(i < n1 || j < n2) {
+      double v;
+      if(j >= n2 || (i < n1 && sortedA[i] <= sortedB[j])) {
+        v = sortedA[i];
+      } else {
+        v = sortedB[j];
+      }
+      long ta = 0, tb = 0;
+      while(i < n1 && sortedA[i] == v) { i++; ta++; }
+      while(j < n2 && sortedB[j] == v) { j++; tb++; }
+      double t = ta + tb;
+      rankSumA += ta * (rank + (t + 1) / 2);
+      ties += t * t * t - t;
+      rank += ta + tb;
+    }
+    double n = (double) n1 + n2;
+    double u = rankSumA - (double) n1 * (n1 + 1) / 2;
+    double mean = (double) n1 * n2 / 2;
+    double variance = (double) n1 * n2 / 12 * ((n + 1) - ties / (n * (n - 1)));
+    if(variance <= 0) {
+      return 1.0;
+    }
+    double diff = Math.max(Math.abs(u - mean) - 0.5, 0);
+    double z = diff / Math.sqrt(variance);
+    return Math.min(1.0, 2 * (1 - normalCdf(z)));
+  }
+
+  /**
+   * Bootstrap distribution of the relative change between the median of
+   * {@code sortedCandidate} and the median of {@code sortedBaseline}.
+   *
+   * The median of a resample is drawn directly from the distribution of
+   * the order statistics of uniform variables, so that each resample costs
+   * constant time regardless of the size of the samples. Resamples are
+   * drawn in fixed size blocks, each with a random generator seeded from
+   * its index, and the blocks are split among {@code parallelism} tasks.
+   * Hence the result depends on the seed but not on the parallelism.
+   *
+   * @return the sorted bootstrap replicates
+   */
+  static double[] bootstrapMedianChange(final double[] sortedBaseline,
+                                        final double[] sortedCandidate,
+                                        final int resamples,
+                                        final long seed,
+                                        ExecutorService executor,
+                                        int parallelism) {
+    final double[] replicates = new double[resamples];
+    int blocks = (resamples + BOOTSTRAP_BLOCK - 1) / BOOTSTRAP_BLOCK;
+    int chunks = Math.max(1, Math.min(parallelism, blocks));
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for(int c = 0; c < chunks; c++) {
+      final int fromBlock = (int) ((long) blocks * c / chunks);
+      final int toBlock = (int) ((long) blocks * (c + 1) / chunks);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          for(int b = fromBlock; b < toBlock; b++) {
+            Random rnd = new Random(seed ^ (b * 0x9E3779B97F4A7C15L));
+            int to = Math.min(resamples, (b + 1) * BOOTSTRAP_BLOCK);
+            for(int r = b * BOOTSTRAP_BLOCK; r < to; r++) {
+              double base = bootstrapMedian(sortedBaseline, rnd);
+              double cand = bootstrapMedian(sortedCandidate, rnd);
+              replicates[r] = relativeChange(base, cand);
+            }
+          }
+          return null;
+        }
+      });
+    }
+    invokeAll(executor, tasks);
+    Arrays.sort(replicates);
+    return replicates;
+  }
+
+  static double relativeChange(double base, double value) {
+    if(base == 0) {
+      return (value == 0) ? 0 : Double.NaN;
+    }
+    return (value - base) / Math.abs(base);
+  }
+
+  /**
+   * Draws the median of a bootstrap resample of the given sorted sample.
+   * The m-th smallest of n uniform variables follows a Beta(m, n-m+1)
+   * distribution, and given its value u the next one is the minimum of
+   * n-m uniform variables on (u, 1).
+   */
+  static double bootstrapMedian(double[] sorted, Random rnd) {
+    int n = sorted.length;
+    if(n == 1) {
+      return sorted[0];
+    }
+    int m = (n + 1) / 2;
+    double u = beta(m, n - m + 1, rnd);
+    double lo = sorted[index(u, n)];
+    if(n % 2 == 1) {
+      return lo;
+    }
+    double v = u + (1 - u) * (1 - Math.pow(rnd.nextDouble(), 1.0 / (n - m)));
+    double hi = sorted[index(v, n)];
+    return (lo + hi) / 2;
+  }
+
+  private static int index(double u, int n) {
+    return Math.min((int) (u * n), n - 1);
+  }
+
+  private static double beta(double a, double b, Random rnd) {
+    double x = gamma(a, rnd);
+    double y = gamma(b, rnd);
+    return x / (x + y);
+  }
+
+  /**
+   * Marsaglia and Tsang's method, valid for {@code shape >= 1}.
+   */
+  private static double gamma(double shape, Random rnd) {
+    double d = shape - 1.0 / 3;
+    double c = 1 / Math.sqrt(9 * d);
+    while(true) {
+      double x, v;
+      do {
+        x = rnd.nextGaussian();
+        v = 1 + c * x;
+      } while(v <= 0);
+      v = v * v * v;
+      double u = rnd.nextDouble();
+      if(u < 1 - 0.0331 * x * x * x * x) {
+        return d * v;
+      }
+      if(Math.log(u) < 0.5 * x * x + d * (1 - v + Math.log(v))) {
+        return d * v;
+      }
+    }
+  }
+
+  static double normalCdf(double z) {
+    return 0.5 * erfc(-z / Math.sqrt(2));
+  }
+
+  /**
+   * Complementary error function, with fractional error below 1.2e-7
+   * (Numerical Recipes, Chebyshev approximation).
+   */
+  private static double erfc(double x) {
+    double z = Math.abs(x);
+    double t = 1 / (1 + 0.5 * z);
+    double ans = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 +
+      t * (0.37409196 + t * (0.09678418 + t * (-0.18628806 +
+      t * (0.27886807 + t * (-1.13520398 + t * (1.48851587 +
+      t * (-0.82215223 + t * 0.17087277)))))))));
+    return (x >= 0) ? ans : 2 - ans;
+  }
+
+}
@@ -24,10 +24,19 @@ public class Table {
   private Collection<String> headers;
 
   public Table() {
-    this.rows = new LinkedList<Map<String, Object>>();
+    this.rows = new ArrayList<Map<String, Object>>();
     this.headers = null;
   }
 
+  /**
+   * Creates an empty table with the given headers, so that it can be
+   * printed even if no row is ever added.
+   */
+  public Table(String... headers) {
+    this.rows = new ArrayList<Map<String, Object>>();
+    this.headers = new LinkedHashSet<String>(Arrays.asList(headers));
+  }
+
   public Table addRow(Object... rowEntries) {
     if(rowEntries.length % 2 != 0) {
       throw new IllegalArgumentException(
@@ -62,12 +71,16 @@ public class Table {
     return rows;
   }
 
+  private Collection<String> getHeaders() {
+    return (headers == null) ? new ArrayList<String>() : headers;
+  }
+
   public String asOrgTable() {
-    return this.asOrgTable(new HashMap<String, Object>(), headers);
+    return this.asOrgTable(new HashMap<String, Object>(), getHeaders());
   }
 
   public String asOrgTable(Map<String, Object> tags) {
-    return this.asOrgTable(tags, headers);
+    return this.asOrgTable(tags, getHeaders());
   }
 
   public String asOrgTable(String... columns) {
@@ -84,12 +97,15 @@ public class Table {
   }
 
   public String asOrgTable(Map<String, Object> tags, Collection<String> columns) {
-    if(!headers.containsAll(columns)) {
+    if(!getHeaders().containsAll(columns)) {
       throw new IllegalArgumentException(
         "Some columns are undefined in the table");
     }
 
     Collection<String> tagColumns = tags.keySet();
+    if(tagColumns.isEmpty() && columns.isEmpty()) {
+      return "";
+    }
 
     Map<String, Integer> widths = new HashMap<String, Integer>();
     for(String c : tagColumns) {
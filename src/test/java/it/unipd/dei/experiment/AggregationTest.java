@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 Matteo Ceccarello
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.unipd.dei.experiment;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class AggregationTest {
+
+  private static Experiment experiment(String variant, int iterations, double offset) {
+    Experiment exp = new Experiment().tag("variant", variant);
+    for(int i = 0; i < iterations; i++) {
+      exp.append("timing",
+        "phase", (i % 2 == 0) ? "even" : "odd",
+        "time", offset + i);
+    }
+    return exp;
+  }
+
+  @Test
+  public void testGroupByTagAndColumn() {
+    Aggregation aggregation = new Aggregation()
+      .groupByTag("variant")
+      .groupBy("phase")
+      .count()
+      .sum("time")
+      .mean("time")
+      .min("time")
+      .max("time")
+      .quantile("time", 0.5);
+
+    Table result = aggregation.aggregate("timing",
+      experiment("a", 4, 0),
+      experiment("b", 4, 100),
+      experiment("a", 4, 10));
+
+    List<Map<String, Object>> rows = result.getRows();
+    assertEquals(4, rows.size());
+
+    // Variant a, even phase: times 0, 2, 10, 12
+    Map<String, Object> row = rows.get(0);
+    assertEquals("a", row.get("variant"));
+    assertEquals("even", row.get("phase"));
+    assertEquals(4L, row.get("count"));
+    assertEquals(24.0, row.get("sum(time)"));
+    assertEquals(6.0, row.get("mean(time)"));
+    assertEquals(0.0, row.get("min(time)"));
+    assertEquals(12.0, row.get("max(time)"));
+    assertEquals(6.0, row.get("q0.5(time)"));
+
+    // Variant b, odd phase: times 101, 103
+    row = rows.get(3);
+    assertEquals("b", row.get("variant"));
+    assertEquals("odd", row.get("phase"));
+    assertEquals(2L, row.get("count"));
+    assertEquals(102.0, row.get("mean(time)"));
+  }
+
+  @Test
+  public void testNoGroups() {
+    Table result = new Aggregation()
+      .count()
+      .mean("time")
+      .aggregate("timing", experiment("a", 10, 0), new Experiment());
+
+    assertEquals(1, result.getRows().size());
+    assertEquals(10L, result.getRows().get(0).get("count"));
+    assertEquals(4.5, result.getRows().get(0).get("mean(time)"));
+  }
+
+  @Test
+  public void testMixLoadedExperiments() {
+    Experiment exp = new Experiment().tag("parameter", 1);
+    exp.append("timing",
+      "time", 10);
+    Experiment loaded = ReportLoader.parse(JsonFormatter.format(exp)).get(0);
+
+    Table result = new Aggregation()
+      .groupByTag("parameter")
+      .count()
+      .aggregate("timing", exp, loaded);
+
+    assertEquals(1, result.getRows().size());
+    assertEquals(1L, result.getRows().get(0).get("parameter"));
+    assertEquals(2L, result.getRows().get(0).get("count"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateKey() {
+    new Aggregation().groupBy("x").groupByTag("x");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateAggregate() {
+    new Aggregation().mean("time").mean("time");
+  }
+
+  @Test
+  public void testEmptyResult() {
+    Aggregation aggregation = new Aggregation()
+      .groupByTag("variant")
+      .count();
+    Table result = aggregation.aggregate("missing", experiment("a", 4, 0));
+
+    assertEquals(0, result.getRows().size());
+    assertEquals(
+      "| variant | count |\n" +
+      "|---------+-------|\n",
+      result.asOrgTable(aggregation.getColumns()));
+  }
+
+  @Test
+  public void testQuantileWithNaN() {
+    Experiment exp = new Experiment();
+    int n = 200000;
+    for(int i = 0; i < n; i++) {
+      exp.append("table",
+        "value", (i == 10) ? Double.NaN : (double) i);
+    }
+
+    Aggregation aggregation = new Aggregation()
+      .quantile("value", 0.25)
+      .quantile("value", 0.5);
+    Map<String, Object> sequential =
+      aggregation.parallelism(1).aggregate("table", exp).getRows().get(0);
+    Map<String, Object> parallel =
+      aggregation.parallelism(4).aggregate("table", exp).getRows().get(0);
+
+    assertEquals(sequential, parallel);
+    assertEquals(50000.75, parallel.get("q0.25(value)"));
+    assertEquals(100000.5, parallel.get("q0.5(value)"));
+  }
+
+  @Test
+  public void testParallelPartitions() {
+    Experiment exp = new Experiment();
+    int n = 100000;
+    for(int i = 0; i < n; i++) {
+      exp.append("table",
+        "key", i % 7,
+        "value", i);
+    }
+
+    Aggregation aggregation = new Aggregation()
+      .groupBy("key")
+      .count()
+      .sum("value")
+      .max("value")
+      .quantile("value", 0.5);
+    Map<String, Object> sequential =
+      aggregation.parallelism(1).aggregate("table", exp).getRows().get(3);
+    Map<String, Object> parallel =
+      aggregation.parallelism(4).aggregate("table", exp).getRows().get(3);
+
+    assertEquals(sequential, parallel);
+    assertEquals(3L, parallel.get("key"));
+    assertEquals((long) (n / 7 + 1), parallel.get("count"));
+  }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014 Matteo Ceccarello
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.unipd.dei.experiment;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class ComparisonTest {
+
+  private static List<Experiment> runs(Random rnd, String variant, double scale,
+                                       int numRuns, int samplesPerRun) {
+    List<Experiment> experiments = new ArrayList<Experiment>();
+    for(int r = 0; r < numRuns; r++) {
+      Experiment exp = new Experiment().tag("variant", variant);
+      for(int i = 0; i < samplesPerRun; i++) {
+        exp.append("timing",
+          "iteration", i,
+          "time", scale * (100 + 10 * rnd.nextGaussian()));
+      }
+      experiments.add(exp);
+    }
+    return experiments;
+  }
+
+  @Test
+  public void testNoRegression() {
+    Random rnd = new Random(1);
+    Table differences = new Comparison("timing", "time")
+      .compare(runs(rnd, "a", 1.0, 5, 200), runs(rnd, "a", 1.0, 5, 200));
+
+    assertEquals(1, differences.getRows().size());
+    assertFalse(Comparison.hasRegression(differences));
+  }
+
+  @Test
+  public void testRegression() {
+    Random rnd = new Random(2);
+    Table differences = new Comparison("timing", "time")
+      .compare(runs(rnd, "a", 1.0, 5, 200), runs(rnd, "a", 1.2, 5, 200));
+
+    assertTrue(Comparison.hasRegression(differences));
+    Map<String, Object> row = differences.getRows().get(0);
+    assertEquals(1000, row.get(Comparison.BASELINE_COUNT));
+    assertEquals(0.2, (Double) row.get(Comparison.CHANGE), 0.02);
+    assertTrue((Double) row.get(Comparison.CI_LOW) < 0.2);
+    assertTrue((Double) row.get(Comparison.CI_HIGH) > 0.2);
+    assertTrue((Double) row.get(Comparison.P_VALUE) < 0.001);
+  }
+
+  @Test
+  public void testHigherIsBetter() {
+    Random rnd = new Random(3);
+    List<Experiment> baseline = runs(rnd, "a", 1.0, 5, 200);
+    List<Experiment> candidate = runs(rnd, "a", 0.8, 5, 200);
+
+    assertFalse(Comparison.hasRegression(
+      new Comparison("timing", "time").compare(baseline, candidate)));
+    assertTrue(Comparison.hasRegression(
+      new Comparison("timing", "time").higherIsBetter().compare(baseline, candidate)));
+  }
+
+  @Test
+  public void testMatchTags() {
+    Random rnd = new Random(4);
+    List<Experiment> baseline = runs(rnd, "a", 1.0, 3, 200);
+    baseline.addAll(runs(rnd, "b", 1.0, 3, 200));
+    baseline.addAll(runs(rnd, "only baseline", 1.0, 3, 200));
+    List<Experiment> candidate = runs(rnd, "a", 1.0, 3, 200);
+    candidate.addAll(runs(rnd, "b", 1.5, 3, 200));
+
+    Table differences = new Comparison("timing", "time")
+      .matchTags("variant")
+      .compare(baseline, candidate);
+
+    List<Map<String, Object>> rows = differences.getRows();
+    assertEquals(2, rows.size());
+    assertEquals("a", rows.get(0).get("variant"));
+    assertEquals(false, rows.get(0).get(Comparison.REGRESSION));
+    assertEquals("b", rows.get(1).get("variant"));
+    assertEquals(true, rows.get(1).get(Comparison.REGRESSION));
+  }
+
+  @Test
+  public void testNoMatches() {
+    Random rnd = new Random(8);
+    Comparison comparison = new Comparison("timing", "time").matchTags("variant");
+    Table differences = comparison.compare(
+      runs(rnd, "a", 1.0, 1, 10), runs(rnd, "b", 1.0, 1, 10));
+
+    assertEquals(0, differences.getRows().size());
+    assertFalse(Comparison.hasRegression(differences));
+    assertEquals(
+      differences.asOrgTable(),
+      differences.asOrgTable(comparison.getColumns()));
+    assertTrue(differences.asOrgTable().startsWith("| variant | baseline n |"));
+  }
+
+  @Test
+  public void testMatchLoadedExperiments() {
+    Experiment exp = new Experiment().tag("p", 1);
+    for(int i = 0; i < 10; i++) {
+      exp.append("timing",
+        "iteration", i,
+        "time", 100 + i);
+    }
+    List<Experiment> loaded = ReportLoader.parse(JsonFormatter.format(exp));
+
+    Table differences = new Comparison("timing", "time")
+      .matchTags("p")
+      .compare(Arrays.asList(exp), loaded);
+
+    assertEquals(1, differences.getRows().size());
+    assertFalse(Comparison.hasRegression(differences));
+  }
+
+  @Test
+  public void testReproducibleAcrossParallelism() {
+    Random rnd = new Random(7);
+    List<Experiment> baseline = runs(rnd, "a", 1.0, 5, 200);
+    List<Experiment> candidate = runs(rnd, "a", 1.05, 5, 200);
+
+    Table sequential = new Comparison("timing", "time")
+      .seed(42).parallelism(1).compare(baseline, candidate);
+    Table parallel = new Comparison("timing", "time")
+      .seed(42).parallelism(4).compare(baseline, candidate);
+
+    assertEquals(sequential.getRows(), parallel.getRows());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsNaN() {
+    Random rnd = new Random(6);
+    List<Experiment> candidate = runs(rnd, "a", 1.0, 1, 10);
+    candidate.get(0).append("timing",
+      "iteration", 10,
+      "time", Double.NaN);
+
+    new Comparison("timing", "time")
+      .compare(runs(rnd, "a", 1.0, 1, 10), candidate);
+  }
+
+  @Test
+  public void testMannWhitney() {
+    double[] a = {1, 2, 3};
+    double[] b = {4, 5, 6};
+    assertEquals(0.0809, Statistics.mannWhitneyPValue(a, b), 1e-3);
+    assertEquals(0.0809, Statistics.mannWhitneyPValue(b, a), 1e-3);
+    assertEquals(1.0, Statistics.mannWhitneyPValue(a, a), 1e-6);
+  }
+
+  @Test
+  public void testParallelSort() {
+    Random rnd = new Random(5);
+    double[] data = new double[300001];
+    for(int i = 0; i < data.length; i++) {
+      data[i] = rnd.nextDouble();
+    }
+    double[] expected = data.clone();
+    Arrays.sort(expected);
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      Statistics.sort(data, executor, 3);
+    } finally {
+      executor.shutdown();
+    }
+    assertArrayEquals(expected, data, 0);
+  }
+
+}
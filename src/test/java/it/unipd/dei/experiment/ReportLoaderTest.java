@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014 Matteo Ceccarello
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.unipd.dei.experiment;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReportLoaderTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Experiment sampleExperiment() {
+    return new Experiment()
+      .tag("parameter", 123)
+      .tag("name", "value")
+      .append("timing",
+        "iteration", 0,
+        "time", 1.5)
+      .append("timing",
+        "iteration", 1,
+        "time", 2.5);
+  }
+
+  @Test
+  public void testParseConcatenated() {
+    String json = JsonFormatter.format(sampleExperiment()) + "\n" +
+      JsonFormatter.format(sampleExperiment()) + "\n";
+
+    List<Experiment> experiments = ReportLoader.parse(json);
+
+    assertEquals(2, experiments.size());
+    Experiment exp = experiments.get(1);
+    assertEquals(123L, exp.getTags().get("parameter"));
+    assertEquals("value", exp.getTags().get("name"));
+    List<Map<String, Object>> rows = exp.getTables().get("timing").getRows();
+    assertEquals(2, rows.size());
+    assertEquals(1L, rows.get(1).get("iteration"));
+    assertEquals(2.5, rows.get(1).get("time"));
+  }
+
+  @Test
+  public void testLoadCompressedAppended() throws Exception {
+    File dir = folder.newFolder("reports");
+    sampleExperiment().saveAsJsonFile(dir.getPath(), true, true);
+    sampleExperiment().saveAsJsonFile(dir.getPath(), true, true);
+    sampleExperiment().saveAsJsonFile(dir.getPath(), false, false);
+
+    List<Experiment> experiments = ReportLoader.load(folder.getRoot());
+
+    assertEquals(3, experiments.size());
+    for(Experiment exp : experiments) {
+      assertEquals(2, exp.getTables().get("timing").getRows().size());
+    }
+  }
+
+}
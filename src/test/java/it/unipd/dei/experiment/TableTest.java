@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Matteo Ceccarello
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package it.unipd.dei.experiment;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TableTest {
+
+  @Test
+  public void testEmptyWithHeaders() {
+    Table table = new Table("b", "a");
+
+    assertEquals(
+      "| b | a |\n" +
+      "|---+---|\n",
+      table.asOrgTable());
+
+    table.addRow(
+      "a", 1,
+      "b", 2);
+
+    assertEquals(
+      "| b | a |\n" +
+      "|---+---|\n" +
+      "| 2 | 1 |\n",
+      table.asOrgTable());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testHeadersEnforced() {
+    new Table("a", "b").addRow("a", 1);
+  }
+
+  @Test
+  public void testEmptyWithoutHeaders() {
+    Table table = new Table();
+
+    assertEquals("", table.asOrgTable());
+
+    String report = new Experiment()
+      .addTable("empty", table)
+      .toSimpleString();
+    assertTrue(report, report.endsWith("-- empty --\n\n\n"));
+  }
+
+}